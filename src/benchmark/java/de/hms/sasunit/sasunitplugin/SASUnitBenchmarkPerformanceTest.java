@@ -0,0 +1,57 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+* Runs the JMH benchmarks of the plug-in and fails if one of them got slower than the
+* baseline, see {@link SASUnitBenchmarkResults}.
+*
+* The error of a score is the 99.9% confidence interval reported by JMH.
+*
+* @author Bernhard Braun
+*/
+public class SASUnitBenchmarkPerformanceTest {
+
+	@Test
+	public void testBenchmarks() throws Exception {
+		Options options = new OptionsBuilder()
+			.include(getClass().getPackage().getName() + "\\..*Benchmark\\..*")
+			.build();
+		Collection<RunResult> results = new Runner(options).run();
+
+		Map<String, double[]> scores = new TreeMap<String, double[]>();
+		for (RunResult result : results) {
+			Result<?> primary = result.getPrimaryResult();
+			double error = Double.isNaN(primary.getScoreError()) ? 0 : primary.getScoreError();
+			scores.put(result.getParams().getBenchmark(), new double[] { primary.getScore(), error });
+		}
+		SASUnitBenchmarkResults.report(scores);
+	}
+}
@@ -0,0 +1,173 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+* Records benchmark scores and compares them against a baseline.
+*
+* Every score is a throughput (higher is better) with an error, e.g. the 99.9% confidence
+* interval of JMH or the standard deviation of repeated end-to-end runs. The scores of all
+* performance tests are collected in the file given by system property
+* sasunit.benchmark.results, target/benchmark-results.properties by default.
+*
+* The baseline is read from the file given by sasunit.benchmark.baseline,
+* benchmark-baseline.properties by default, and has the same format. It is specific to the
+* machine it was recorded on and therefore ignored by git. A score is a
+* regression if its mean is below the mean of the baseline, reduced by
+* sasunit.benchmark.tolerance (default 0.1, i.e. 10%). The error does not widen that
+* band, it only rejects runs too noisy to compare: a score whose error exceeds
+* sasunit.benchmark.noise (default 0.2, i.e. 20%) of its mean fails the gate and is never
+* recorded. A missing baseline fails the gate as well. Run with
+* -Dsasunit.benchmark.record=true on the reference machine to write the baseline instead
+* of comparing against it. Both files are written from scratch by each test run, the
+* performance tests of one run add their scores to them.
+*
+* @author Bernhard Braun
+*/
+final class SASUnitBenchmarkResults {
+
+	private static final String	ERROR_SUFFIX	= ".error";
+
+	static final String			RESULTS			= System.getProperty("sasunit.benchmark.results", "target/benchmark-results.properties");
+	static final String			BASELINE		= System.getProperty("sasunit.benchmark.baseline", "benchmark-baseline.properties");
+	static final boolean		RECORD			= Boolean.getBoolean("sasunit.benchmark.record");
+	static final double			TOLERANCE		= Double.parseDouble(System.getProperty("sasunit.benchmark.tolerance", "0.1"));
+	static final double			NOISE			= Double.parseDouble(System.getProperty("sasunit.benchmark.noise", "0.2"));
+
+	/**
+	* Files written during this test run
+	*/
+	private static final Set<File>	written			= new HashSet<File>();
+
+	private SASUnitBenchmarkResults() {
+	}
+
+	/**
+	* Get mean and standard deviation of repeated measurements.
+	*
+	* @param samples The throughput of each repetition
+	* @return The score as {mean, standard deviation}
+	*/
+	static double[] score(double... samples) {
+		double sum = 0;
+		for (double sample : samples) {
+			sum += sample;
+		}
+		double mean = sum / samples.length;
+		double squares = 0;
+		for (double sample : samples) {
+			squares += (sample - mean) * (sample - mean);
+		}
+		double deviation = samples.length > 1 ? Math.sqrt(squares / (samples.length - 1)) : 0;
+		return new double[] { mean, deviation };
+	}
+
+	/**
+	* Writes the scores to the results file and checks them against the baseline, or
+	* writes them to the baseline in record mode.
+	*
+	* @param scores The scores as {score, error}, keyed by benchmark name
+	*/
+	static synchronized void report(Map<String, double[]> scores) throws IOException {
+		store(new File(RESULTS), scores);
+
+		StringBuilder noisy = new StringBuilder();
+		for (Map.Entry<String, double[]> score : scores.entrySet()) {
+			double actualScore = score.getValue()[0];
+			double actualError = score.getValue()[1];
+			if (!(actualError <= actualScore * NOISE)) {
+				noisy.append(String.format("%n%s: %.3f +/- %.3f", score.getKey(), actualScore, actualError));
+			}
+		}
+		assertTrue("Benchmarks too noisy to compare, error above " + (int) (NOISE * 100) + "% of the score:" + noisy,
+				noisy.length() == 0);
+
+		if (RECORD) {
+			store(new File(BASELINE), scores);
+			return;
+		}
+
+		File baselineFile = new File(BASELINE);
+		assertTrue("No benchmark baseline " + baselineFile.getAbsolutePath()
+				+ ", record one with -Dsasunit.benchmark.record=true or pass it with -Dsasunit.benchmark.baseline=<file>",
+				baselineFile.isFile());
+		Properties baseline = load(baselineFile);
+
+		StringBuilder regressions = new StringBuilder();
+		for (Map.Entry<String, double[]> score : scores.entrySet()) {
+			String benchmark = score.getKey();
+			String expected = baseline.getProperty(benchmark);
+			if (expected == null) {
+				regressions.append(String.format("%n%s: no baseline, record it again", benchmark));
+				continue;
+			}
+			double expectedScore = Double.parseDouble(expected);
+			double actualScore = score.getValue()[0];
+			if (actualScore < expectedScore * (1 - TOLERANCE)) {
+				regressions.append(String.format("%n%s: %.3f +/- %.3f, baseline %.3f +/- %.3f",
+						benchmark, actualScore, score.getValue()[1], expectedScore,
+						Double.parseDouble(baseline.getProperty(benchmark + ERROR_SUFFIX, "0"))));
+			}
+		}
+		assertTrue("Benchmarks slower than baseline:" + regressions, regressions.length() == 0);
+	}
+
+	private static void store(File file, Map<String, double[]> scores) throws IOException {
+		Properties properties = written.add(file.getAbsoluteFile()) ? new Properties() : load(file);
+		for (Map.Entry<String, double[]> score : scores.entrySet()) {
+			properties.setProperty(score.getKey(), String.valueOf(score.getValue()[0]));
+			properties.setProperty(score.getKey() + ERROR_SUFFIX, String.valueOf(score.getValue()[1]));
+		}
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+		OutputStream out = new FileOutputStream(file);
+		try {
+			properties.store(out, "SASUnit plug-in benchmark scores, throughput and error");
+		} finally {
+			IOUtils.closeQuietly(out);
+		}
+	}
+
+	private static Properties load(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		return properties;
+	}
+}
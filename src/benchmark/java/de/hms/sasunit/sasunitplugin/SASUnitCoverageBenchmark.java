@@ -0,0 +1,100 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+* Microbenchmarks for parsing and evaluating the SASUnit macro coverage.
+*
+* The coverage file imitates a test suite of {@link #SCENARIOS} scenarios, each executing
+* {@link #MACROS_PER_SCENARIO} of {@link #MACROS} macros with {@link #MACRO_LINES} lines.
+*
+* @author Bernhard Braun
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class SASUnitCoverageBenchmark {
+
+	static final int SCENARIOS				= 1000;
+	static final int MACROS_PER_SCENARIO	= 10;
+	static final int MACROS					= 500;
+	static final int MACRO_LINES			= 400;
+
+	String					coverageFile;
+	SASUnitCoverageResult	result;
+
+	@Setup
+	public void setUp() throws IOException {
+		StringBuilder records = new StringBuilder();
+		for (int s = 1; s <= SCENARIOS; s++) {
+			for (int m = 1; m <= MACROS_PER_SCENARIO; m++) {
+				String name = "macro" + ((s * 7 + m) % MACROS);
+				int executed = s % MACRO_LINES + 1;
+				records.append("1 1 1 ").append(name).append('\n')
+					.append("2 1 ").append(executed / 2 + 1).append(' ').append(name).append('\n')
+					.append("3 ").append(executed / 2 + 2).append(' ').append(executed / 2 + 5).append(' ').append(name).append('\n')
+					.append("2 ").append(executed).append(' ').append(MACRO_LINES).append(' ').append(name).append('\n')
+					.append("4 ").append(MACRO_LINES).append(' ').append(MACRO_LINES).append(' ').append(name).append('\n');
+			}
+		}
+		coverageFile = records.toString();
+		result = parseCoverage();
+	}
+
+	@Benchmark
+	public SASUnitCoverageResult parseCoverage() throws IOException {
+		Map<String, SASUnitCoverageParser.MacroLines> macros = new HashMap<String, SASUnitCoverageParser.MacroLines>();
+		SASUnitCoverageParser.parse(new StringReader(coverageFile), macros);
+		return SASUnitCoverageParser.toResult(macros);
+	}
+
+	@Benchmark
+	public SASUnitCoverageAction summarizeCoverage() {
+		return new SASUnitCoverageAction(result, Collections.singleton("macro1"));
+	}
+
+	@Benchmark
+	public void uncoveredLines(Blackhole blackhole) {
+		for (SASUnitMacroCoverage macro : result.getMacros()) {
+			blackhole.consume(macro.getUncoveredLines());
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.Launcher;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Microbenchmark for running a command and copying its output into the build log, as
+* {@link SASUnitPlugInBuilder#execCmdJob} does for the SASUnit batch file.
+*
+* The command prints a prepared log of LOG_MEGABYTES, one operation copies the whole log
+* through a local launcher into a build listener writing to a null stream. Loading the
+* builder needs the descriptor and therefore a running Jenkins, which is started with
+* {@link JenkinsRule} for the whole trial.
+*
+* @author Bernhard Braun
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class SASUnitExecCmdJobBenchmark {
+
+	static final int		LOG_MEGABYTES	= 16;
+
+	private final CountDownLatch	started		= new CountDownLatch(1);
+	private final CountDownLatch	stopped		= new CountDownLatch(1);
+	private Thread					jenkins;
+	private volatile Throwable		failure;
+
+	File					rootFolder;
+	SASUnitPlugInBuilder	builder;
+	String[]				cmd;
+	Launcher				launcher;
+	BuildListener			listener;
+
+	@Setup
+	public void setUp() throws Exception {
+		startJenkins();
+
+		rootFolder = File.createTempFile("sasunit", "bench");
+		rootFolder.delete();
+		rootFolder.mkdirs();
+		writeLog(new File(rootFolder, "sasunit.log"));
+
+		if (Functions.isWindows()) {
+			cmd = new String[] { "cmd.exe", "/C", "type", "sasunit.log" };
+		} else {
+			cmd = new String[] { "cat", "sasunit.log" };
+		}
+		builder = new SASUnitPlugInBuilder("sasunit.sh", "doxygen.sh", "SASUnit_1.3", false);
+		listener = new StreamBuildListener(new NullOutputStream());
+		launcher = new Launcher.LocalLauncher(listener);
+		if (!execCmdJob()) {
+			throw new IllegalStateException("Command " + cmd[0] + " failed in " + rootFolder);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		stopped.countDown();
+		jenkins.join();
+		FileUtils.deleteQuietly(rootFolder);
+	}
+
+	/**
+	* Runs a Jenkins in a thread of its own until the trial is torn down.
+	*/
+	private void startJenkins() throws Exception {
+		final Statement trial = new JenkinsRule().apply(new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				started.countDown();
+				stopped.await();
+			}
+		}, Description.createTestDescription(getClass(), "execCmdJob"));
+		jenkins = new Thread("Jenkins for " + getClass().getSimpleName()) {
+			@Override
+			public void run() {
+				try {
+					trial.evaluate();
+				} catch (Throwable t) {
+					failure = t;
+				} finally {
+					started.countDown();
+				}
+			}
+		};
+		jenkins.start();
+		started.await();
+		if (failure != null) {
+			throw new IllegalStateException("Jenkins did not start", failure);
+		}
+	}
+
+	private static void writeLog(File log) throws IOException {
+		String line = "NOTE: The data set WORK.SCENARIO has 1000 observations and 12 variables.\n";
+		long size = LOG_MEGABYTES * 1024L * 1024L;
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(log), "ISO-8859-1"));
+		try {
+			for (long written = 0; written < size; written += line.length()) {
+				writer.write(line);
+			}
+		} finally {
+			IOUtils.closeQuietly(writer);
+		}
+	}
+
+	@Benchmark
+	public boolean execCmdJob() {
+		return builder.execCmdJob(cmd, launcher, listener, new FilePath(rootFolder));
+	}
+}
@@ -0,0 +1,70 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import hudson.EnvVars;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Microbenchmark for resolving a SASUnit installation against the build environment.
+*
+* The lookup of the installation by name needs a running Jenkins and is measured in
+* {@link SASUnitPlugInBuilderPerformanceTest}.
+*
+* @author Bernhard Braun
+*/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class SASUnitInstallationBenchmark {
+
+	SASUnitInstallation	installation;
+	EnvVars				env;
+
+	@Setup
+	public void setUp() {
+		installation = new SASUnitInstallation("SASUnit_1.3", "${SASUNIT_HOME}/${SASUNIT_VERSION}");
+		env = new EnvVars();
+		for (int i = 0; i < 100; i++) {
+			env.put("BUILD_VARIABLE_" + i, "value" + i);
+		}
+		env.put("SASUNIT_HOME", "/opt/sasunit");
+		env.put("SASUNIT_VERSION", "1.3");
+	}
+
+	@Benchmark
+	public SASUnitInstallation resolveInstallation() {
+		return installation.forEnvironment(env);
+	}
+}
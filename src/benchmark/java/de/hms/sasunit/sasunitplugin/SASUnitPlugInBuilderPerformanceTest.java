@@ -0,0 +1,227 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.tasks.BuildStep;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+/**
+* End-to-end throughput of the plug-in at the volume of a large SASUnit test suite.
+*
+* A shell script stands in for the SASUnit batch file. The log and coverage files SAS would
+* produce are generated by an earlier build step of the first build, only the plug-in step
+* under test is timed. The first build warms up and is discarded, each measurement is then
+* repeated in several builds and reported to {@link SASUnitBenchmarkResults} as mean and
+* standard deviation.
+*
+* Volumes can be changed by system properties: sasunit.perf.logMegabytes (default 1024),
+* sasunit.perf.scenarios (default 5000) and sasunit.perf.repetitions (default 5).
+*
+* @author Bernhard Braun
+*/
+public class SASUnitPlugInBuilderPerformanceTest {
+
+	@Rule
+	public JenkinsRule jenkinsRule = new JenkinsRule();
+
+	FreeStyleProject		project;
+
+	String					sasunitRoot				= "sasunit";
+	String					sasunitBatch			= "sasunit.sh";
+	String					doxygenBatch			= "doxygen.sh";
+	String					sasUnitVersion			= "SASUnit_1.3";
+
+	int						logMegabytes			= Integer.getInteger("sasunit.perf.logMegabytes", 1024);
+	int						scenarios				= Integer.getInteger("sasunit.perf.scenarios", 5000);
+	int						repetitions				= Integer.getInteger("sasunit.perf.repetitions", 5);
+
+	/**
+	* Duration of the timed step in the last build
+	*/
+	volatile long			stepNanos;
+
+	@Before
+	public void setUp() throws Exception {
+		assumeTrue(!Functions.isWindows());
+		SASUnitPlugInBuilder.DESCRIPTOR.setInstallations(new SASUnitInstallation(sasUnitVersion, sasunitRoot));
+		project = jenkinsRule.createFreeStyleProject();
+	}
+
+	/**
+	* Adds a build step writing the stand-in for the SASUnit batch file, if any, and running
+	* the fixture command once in the workspace, before any step under test.
+	*/
+	private void addFixture(final String script, final String fixture, final String marker) {
+		project.getBuildersList().add(new TestBuilder() {
+			@Override
+			public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+				FilePath workspace = build.getWorkspace();
+				if (script != null) {
+					workspace.child(sasunitBatch).write("#!/bin/sh\n" + script, "UTF-8");
+					workspace.child(sasunitBatch).chmod(0755);
+				}
+				if (workspace.child(marker).exists()) {
+					return true;
+				}
+				return launcher.launch().cmds("sh", "-c", fixture).stdout(listener).pwd(workspace).join() == 0;
+			}
+		});
+	}
+
+	/**
+	* Adds a build step running the given step and measuring its duration.
+	*/
+	private void addTimedStep(final BuildStep step) {
+		project.getBuildersList().add(new TestBuilder() {
+			@Override
+			public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+				long start = System.nanoTime();
+				boolean result = step.perform(build, launcher, listener);
+				stepNanos = System.nanoTime() - start;
+				return result;
+			}
+		});
+	}
+
+	/**
+	* Runs a warm-up build, then the measured builds and returns the throughput of the timed
+	* step in each of them.
+	*
+	* @param volume The volume processed by the timed step per build
+	*/
+	private double[] measure(double volume) throws Exception {
+		jenkinsRule.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0).get());
+
+		double[] samples = new double[repetitions];
+		for (int i = 0; i < repetitions; i++) {
+			jenkinsRule.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0).get());
+			samples[i] = volume / (stepNanos / 1e9);
+		}
+		return samples;
+	}
+
+	private void report(String name, String unit, double[] samples) throws IOException {
+		double[] score = SASUnitBenchmarkResults.score(samples);
+		System.out.println(String.format("%s: %.1f +/- %.1f %s", name, score[0], score[1], unit));
+		Map<String, double[]> scores = new TreeMap<String, double[]>();
+		scores.put(getClass().getName() + "." + name, score);
+		SASUnitBenchmarkResults.report(scores);
+	}
+
+	@Test
+	public void testLogThroughput() throws Exception {
+		addFixture("cat sasunit.log\n",
+				"yes 'NOTE: The data set WORK.SCENARIO has 1000 observations and 12 variables.' | head -c "
+				+ (logMegabytes * 1024L * 1024L) + " > sasunit.log",
+				"sasunit.log");
+		addTimedStep(new SASUnitPlugInBuilder(sasunitBatch, doxygenBatch, sasUnitVersion, false));
+
+		report("logThroughput", "MB/s", measure(logMegabytes));
+	}
+
+	@Test
+	public void testCoverageThroughput() throws Exception {
+		addFixture(null,
+				"mkdir -p tcov\n"
+				+ "awk 'BEGIN { for (s = 1; s <= " + scenarios + "; s++) {\n"
+				+ "  f = \"tcov/scenario\" s \".tcov\"\n"
+				+ "  for (m = 1; m <= 10; m++) {\n"
+				+ "    name = \"macro\" ((s * 7 + m) % 500)\n"
+				+ "    print \"1 1 1 \" name > f\n"
+				+ "    print \"2 1 \" (s % 40 + 1) \" \" name > f\n"
+				+ "    print \"3 41 45 \" name > f\n"
+				+ "    print \"4 50 50 \" name > f\n"
+				+ "  }\n"
+				+ "  close(f)\n"
+				+ "} }'\n",
+				"tcov");
+		addTimedStep(new SASUnitCoverageRecorder("tcov/*.tcov"));
+
+		double[] samples = measure(scenarios);
+
+		Set<Integer> macros = new HashSet<Integer>();
+		for (int s = 1; s <= scenarios; s++) {
+			for (int m = 1; m <= 10; m++) {
+				macros.add((s * 7 + m) % 500);
+			}
+		}
+		FreeStyleBuild build = project.getLastBuild();
+		SASUnitCoverageAction action = build.getAction(SASUnitCoverageAction.class);
+		assertNotNull(action);
+		assertEquals(macros.size(), action.getMacroCount());
+		assertNotNull(action.getResult());
+
+		report("coverageThroughput", "scenarios/s", samples);
+	}
+
+	@Test
+	public void testInstallationLookup() throws Exception {
+		SASUnitInstallation[] installations = new SASUnitInstallation[1000];
+		for (int i = 0; i < installations.length; i++) {
+			installations[i] = new SASUnitInstallation("SASUnit_" + i, sasunitRoot + i);
+		}
+		SASUnitPlugInBuilder.DESCRIPTOR.setInstallations(installations);
+		SASUnitPlugInBuilder s = new SASUnitPlugInBuilder(sasunitBatch, doxygenBatch, "SASUnit_" + (installations.length - 1), false);
+
+		int lookups = 100000;
+		SASUnitInstallation found = null;
+		for (int i = 0; i < lookups; i++) {
+			found = s.getInstallation();
+		}
+		assertSame(installations[installations.length - 1], found);
+
+		double[] samples = new double[5];
+		int hits = 0;
+		for (int r = 0; r < samples.length; r++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < lookups; i++) {
+				if (s.getInstallation() != null) {
+					hits++;
+				}
+			}
+			samples[r] = lookups / ((System.nanoTime() - start) / 1e9);
+		}
+		assertEquals(samples.length * lookups, hits);
+
+		report("installationLookup", "lookups/s", samples);
+	}
+}
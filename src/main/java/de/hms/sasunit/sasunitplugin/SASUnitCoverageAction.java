@@ -0,0 +1,244 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import hudson.XmlFile;
+import hudson.model.Run;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jenkins.model.RunAction2;
+
+/**
+* Build action showing the SASUnit macro coverage of a build.
+*
+* Only the summary is kept in build.xml and therefore in memory. The line coverage of the
+* single macros is written to a separate file and loaded on demand, e.g. when the coverage
+* page of the build is opened.
+*
+* @author Bernhard Braun
+*/
+public class SASUnitCoverageAction implements RunAction2 {
+
+	private static final Logger LOGGER = Logger.getLogger(SASUnitCoverageAction.class.getName());
+
+	/**
+	* Name of the file in the build folder holding the line coverage
+	*/
+	static final String COVERAGE_FILE = "sasunit-coverage.xml";
+
+	private final int totalLines;
+	private final int coveredLines;
+	private final int macroCount;
+
+	/**
+	* Coverable and covered lines of the macros changed in this build
+	*/
+	private final int diffTotalLines;
+	private final int diffCoveredLines;
+
+	/**
+	* Number of changed macros that no test executed
+	*/
+	private final int diffNotExecuted;
+
+	/**
+	* Lower case names of the macros whose source files changed in this build
+	*/
+	private final Set<String> changedMacros;
+
+	private transient Run<?, ?> owner;
+
+	private transient WeakReference<SASUnitCoverageResult> result;
+
+	/**
+	* Constructor using fields.
+	*
+	* @param result The coverage of the build
+	* @param changedMacros The names of the sources changed in the build
+	*/
+	SASUnitCoverageAction(SASUnitCoverageResult result, Set<String> changedMacros) {
+		int diffTotal = 0;
+		int diffCovered = 0;
+		int notExecuted = 0;
+		this.changedMacros = new TreeSet<String>();
+		for (String name : changedMacros) {
+			if (!result.isMacro(name)) {
+				continue;
+			}
+			this.changedMacros.add(name);
+			SASUnitMacroCoverage macro = getChangedMacro(result, name);
+			if (!macro.isExecuted()) {
+				notExecuted++;
+			}
+			diffTotal += macro.getTotalLines();
+			diffCovered += macro.getCoveredLines();
+		}
+		this.totalLines 		= result.getTotalLines();
+		this.coveredLines 		= result.getCoveredLines();
+		this.macroCount 		= result.getMacros().size();
+		this.diffTotalLines 	= diffTotal;
+		this.diffCoveredLines 	= diffCovered;
+		this.diffNotExecuted 	= notExecuted;
+		this.result 			= new WeakReference<SASUnitCoverageResult>(result);
+	}
+
+	/**
+	* Write the line coverage into the build folder.
+	*
+	* @param build The build the coverage belongs to
+	* @param result The coverage of the build
+	*/
+	static void save(Run<?, ?> build, SASUnitCoverageResult result) throws IOException {
+		getCoverageFile(build).write(result);
+	}
+
+	/**
+	* Get the coverage of a changed macro. Changed macros that no test executed count as
+	* uncovered, with no coverable lines if their source was not found in the workspace.
+	*/
+	private static SASUnitMacroCoverage getChangedMacro(SASUnitCoverageResult result, String name) {
+		SASUnitMacroCoverage macro = result.getMacro(name);
+		if (macro == null) {
+			macro = result.getNotExecutedMacro(name);
+		}
+		if (macro == null) {
+			macro = SASUnitMacroCoverage.notExecuted(name, new BitSet());
+		}
+		return macro;
+	}
+
+	private static XmlFile getCoverageFile(Run<?, ?> build) {
+		return new XmlFile(new File(build.getRootDir(), COVERAGE_FILE));
+	}
+
+	public void onAttached(Run<?, ?> r) {
+		this.owner = r;
+	}
+
+	public void onLoad(Run<?, ?> r) {
+		this.owner = r;
+	}
+
+	public Run<?, ?> getOwner() {
+		return owner;
+	}
+
+	public int getTotalLines() {
+		return totalLines;
+	}
+
+	public int getCoveredLines() {
+		return coveredLines;
+	}
+
+	public int getPercentage() {
+		return SASUnitCoverageResult.percentage(coveredLines, totalLines);
+	}
+
+	public int getMacroCount() {
+		return macroCount;
+	}
+
+	public int getDiffTotalLines() {
+		return diffTotalLines;
+	}
+
+	public int getDiffCoveredLines() {
+		return diffCoveredLines;
+	}
+
+	public int getDiffNotExecuted() {
+		return diffNotExecuted;
+	}
+
+	/**
+	* Percentage of executed lines of the changed macros. If the changed macros have no known
+	* coverable lines, it is 0 as soon as one of them has not been executed.
+	*
+	* @return The percentage between 0 and 100
+	*/
+	public int getDiffPercentage() {
+		if (diffTotalLines == 0 && diffNotExecuted > 0) {
+			return 0;
+		}
+		return SASUnitCoverageResult.percentage(diffCoveredLines, diffTotalLines);
+	}
+
+	public boolean hasDiffCoverage() {
+		return !changedMacros.isEmpty();
+	}
+
+	/**
+	* Get the line coverage of the build, loading it from the build folder if necessary.
+	*
+	* @return The coverage or null if it cannot be read
+	*/
+	public synchronized SASUnitCoverageResult getResult() {
+		SASUnitCoverageResult r = result == null ? null : result.get();
+		if (r == null && owner != null) {
+			try {
+				r = (SASUnitCoverageResult) getCoverageFile(owner).read();
+				result = new WeakReference<SASUnitCoverageResult>(r);
+			} catch (IOException ioe) {
+				LOGGER.log(Level.WARNING, "Failed to load " + COVERAGE_FILE + " of " + owner, ioe);
+			}
+		}
+		return r;
+	}
+
+	/**
+	* Get the coverage of the macros changed in this build.
+	*
+	* @return The changed macros, including those not executed by any test
+	*/
+	public List<SASUnitMacroCoverage> getChangedMacros() {
+		SASUnitCoverageResult r = getResult();
+		if (r == null) {
+			return Collections.emptyList();
+		}
+		List<SASUnitMacroCoverage> macros = new ArrayList<SASUnitMacroCoverage>();
+		for (String name : changedMacros) {
+			macros.add(getChangedMacro(r, name));
+		}
+		return macros;
+	}
+
+	public String getIconFileName() {
+		return "graph.gif";
+	}
+
+	public String getDisplayName() {
+		return Messages.SASUnitCoverageAction_DisplayName();
+	}
+
+	public String getUrlName() {
+		return "sasunitCoverage";
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.remoting.VirtualChannel;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+* Parses the coverage files written by SAS with option MCOVERAGE during a SASUnit run.
+*
+* Each line of such a file is a record "type firstLine lastLine macroName" where type is
+* 1 (macro execution begins), 2 (lines executed), 3 (lines without generated code) or
+* 4 (macro execution ends).
+*
+* The parser runs on the node holding the workspace and reads the files line by line,
+* so only the resulting bit sets per macro are sent back to the master. The sources of
+* changed macros without any coverage record are read as well, so that they count as
+* uncovered in the diff coverage. A changed source that does not define a macro named
+* like the file, e.g. a test scenario, is not a macro and does not count at all.
+*
+* @author Bernhard Braun
+*/
+public class SASUnitCoverageParser implements FilePath.FileCallable<SASUnitCoverageResult> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final int RECORD_BEGIN		= 1;
+	private static final int RECORD_EXECUTED	= 2;
+	private static final int RECORD_NO_CODE		= 3;
+	private static final int RECORD_END			= 4;
+
+	/**
+	* Ant style file pattern of the coverage files relative to the workspace
+	*/
+	private final String includes;
+
+	/**
+	* Workspace relative paths of the changed macro sources, keyed by lower case macro name
+	*/
+	private final HashMap<String, String> changedSources;
+
+	public SASUnitCoverageParser(String includes, Map<String, String> changedSources) {
+		this.includes = includes;
+		this.changedSources = new HashMap<String, String>(changedSources);
+	}
+
+	public SASUnitCoverageResult invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+		Map<String, MacroLines> macros = new HashMap<String, MacroLines>();
+
+		String[] files = Util.createFileSet(workspace, includes).getDirectoryScanner().getIncludedFiles();
+		for (String file : files) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			Reader reader = new InputStreamReader(new FileInputStream(new File(workspace, file)), "ISO-8859-1");
+			try {
+				parse(reader, macros);
+			} finally {
+				IOUtils.closeQuietly(reader);
+			}
+		}
+
+		SASUnitCoverageResult result = toResult(macros);
+		result.setFileCount(files.length);
+
+		for (Map.Entry<String, String> source : changedSources.entrySet()) {
+			File file = new File(workspace, source.getValue());
+			if (macros.containsKey(source.getKey()) || !file.isFile()) {
+				continue;
+			}
+			Reader reader = new InputStreamReader(new FileInputStream(file), "ISO-8859-1");
+			try {
+				BitSet coverable = parseSource(reader, source.getKey());
+				if (coverable == null) {
+					result.addNoMacro(source.getKey());
+				} else {
+					result.addNotExecuted(SASUnitMacroCoverage.notExecuted(source.getKey(), coverable));
+				}
+			} finally {
+				IOUtils.closeQuietly(reader);
+			}
+		}
+		return result;
+	}
+
+	static SASUnitCoverageResult toResult(Map<String, MacroLines> macros) {
+		SASUnitCoverageResult result = new SASUnitCoverageResult();
+		for (Map.Entry<String, MacroLines> macro : macros.entrySet()) {
+			result.add(macro.getValue().toCoverage(macro.getKey()));
+		}
+		return result;
+	}
+
+	/**
+	* Adds the records of one coverage file to the lines collected so far. Coverage of the
+	* same macro in several files is merged. Malformed records are skipped.
+	*
+	* @param reader The coverage file
+	* @param macros The lines collected per lower case macro name
+	*/
+	static void parse(Reader reader, Map<String, MacroLines> macros) throws IOException {
+		BufferedReader in = new BufferedReader(reader);
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] record = WHITESPACE.split(line.trim());
+			if (record.length < 4) {
+				continue;
+			}
+			int type, first, last;
+			try {
+				type  = Integer.parseInt(record[0]);
+				first = Integer.parseInt(record[1]);
+				last  = Integer.parseInt(record[2]);
+			} catch (NumberFormatException nfe) {
+				continue;
+			}
+			if (type < RECORD_BEGIN || type > RECORD_END || first < 1 || last < first) {
+				continue;
+			}
+
+			String name = record[3].toLowerCase(Locale.ENGLISH);
+			MacroLines macro = macros.get(name);
+			if (macro == null) {
+				macro = new MacroLines();
+				macros.put(name, macro);
+			}
+			switch (type) {
+			case RECORD_EXECUTED:
+				macro.executed.set(first, last + 1);
+				break;
+			case RECORD_NO_CODE:
+				macro.noCode.set(first, last + 1);
+				break;
+			default:
+				break;
+			}
+			macro.lastLine = Math.max(macro.lastLine, last);
+		}
+	}
+
+	/**
+	* Reads the source of a macro that no test executed. Without MCOVERAGE records it is
+	* not known which lines generate code, so every line that is not blank counts as coverable.
+	*
+	* @param reader The macro source
+	* @param name The lower case macro name the source has to define
+	* @return The coverable lines or null if the source does not define the macro
+	*/
+	static BitSet parseSource(Reader reader, String name) throws IOException {
+		Pattern definition = Pattern.compile("%macro\\s+" + Pattern.quote(name) + "\\b", Pattern.CASE_INSENSITIVE);
+		BufferedReader in = new BufferedReader(reader);
+		BitSet coverable = new BitSet();
+		boolean defined = false;
+		String line;
+		for (int number = 1; (line = in.readLine()) != null; number++) {
+			if (line.trim().length() > 0) {
+				coverable.set(number);
+				defined = defined || definition.matcher(line).find();
+			}
+		}
+		return defined ? coverable : null;
+	}
+
+	/**
+	* Lines of one macro while parsing
+	*/
+	static final class MacroLines {
+		final BitSet executed	= new BitSet();
+		final BitSet noCode		= new BitSet();
+		int lastLine;
+
+		/**
+		* Every line up to the last line of the macro can be executed unless SAS reported
+		* that it generates no code. Lines that have been executed always count as coverable.
+		*/
+		SASUnitMacroCoverage toCoverage(String name) {
+			BitSet notCoverable = (BitSet) noCode.clone();
+			notCoverable.andNot(executed);
+
+			BitSet coverable = new BitSet(lastLine + 1);
+			coverable.set(1, lastLine + 1);
+			coverable.andNot(notCoverable);
+
+			return new SASUnitMacroCoverage(name, coverable, (BitSet) executed.clone());
+		}
+	}
+}
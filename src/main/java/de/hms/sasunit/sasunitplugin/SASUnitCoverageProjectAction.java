@@ -0,0 +1,161 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.util.ChartUtil.NumberOnlyBuildLabel;
+import hudson.util.DataSetBuilder;
+import hudson.util.Graph;
+import hudson.util.ShiftedCategoryAxis;
+
+import java.awt.Color;
+import java.io.IOException;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryAxis;
+import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.ui.RectangleInsets;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+* Project action showing the SASUnit coverage trend.
+*
+* The trend is drawn from the summaries stored with each build, the line coverage
+* of the single macros is never loaded for it.
+*
+* @author Bernhard Braun
+*/
+public class SASUnitCoverageProjectAction implements Action {
+
+	/**
+	* Maximum number of builds visited for the trend and the last coverage, so jobs that
+	* record coverage only now and then do not load their whole history
+	*/
+	private static final int MAX_BUILDS = 50;
+
+	private final AbstractProject<?, ?> project;
+
+	public SASUnitCoverageProjectAction(AbstractProject<?, ?> project) {
+		this.project = project;
+	}
+
+	public AbstractProject<?, ?> getProject() {
+		return project;
+	}
+
+	/**
+	* Get the coverage of the last completed build having one.
+	*
+	* @return The coverage action or null if none of the last builds recorded coverage
+	*/
+	public SASUnitCoverageAction getLastBuildAction() {
+		int visited = 0;
+		for (AbstractBuild<?, ?> b = project.getLastCompletedBuild(); b != null && visited < MAX_BUILDS; b = b.getPreviousBuild(), visited++) {
+			SASUnitCoverageAction action = b.getAction(SASUnitCoverageAction.class);
+			if (action != null) {
+				return action;
+			}
+		}
+		return null;
+	}
+
+	/**
+	* Redirects to the coverage of the last build.
+	*/
+	public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		SASUnitCoverageAction action = getLastBuildAction();
+		if (action == null) {
+			rsp.sendRedirect2("..");
+		} else {
+			rsp.sendRedirect2("../" + action.getOwner().getNumber() + "/" + action.getUrlName());
+		}
+	}
+
+	/**
+	* Renders the trend graph of total and diff coverage.
+	*/
+	public void doTrend(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		AbstractBuild<?, ?> lastBuild = project.getLastCompletedBuild();
+		if (lastBuild == null) {
+			rsp.setStatus(StaplerResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		final DataSetBuilder<String, NumberOnlyBuildLabel> dsb = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+		int visited = 0;
+		for (AbstractBuild<?, ?> b = lastBuild; b != null && visited < MAX_BUILDS; b = b.getPreviousBuild(), visited++) {
+			SASUnitCoverageAction action = b.getAction(SASUnitCoverageAction.class);
+			if (action == null) {
+				continue;
+			}
+			NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(b);
+			dsb.add(action.getPercentage(), Messages.SASUnitCoverageProjectAction_Total(), label);
+			if (action.hasDiffCoverage()) {
+				dsb.add(action.getDiffPercentage(), Messages.SASUnitCoverageProjectAction_Diff(), label);
+			}
+		}
+
+		new Graph(lastBuild.getTimestamp(), 500, 200) {
+			@Override
+			protected JFreeChart createGraph() {
+				JFreeChart chart = ChartFactory.createLineChart(null, null, "%", dsb.build(),
+						PlotOrientation.VERTICAL, true, true, false);
+				chart.setBackgroundPaint(Color.white);
+
+				CategoryPlot plot = chart.getCategoryPlot();
+				plot.setBackgroundPaint(Color.WHITE);
+				plot.setOutlinePaint(null);
+				plot.setRangeGridlinesVisible(true);
+				plot.setRangeGridlinePaint(Color.black);
+				plot.setInsets(new RectangleInsets(5.0, 0, 0, 5.0));
+
+				CategoryAxis domainAxis = new ShiftedCategoryAxis(null);
+				plot.setDomainAxis(domainAxis);
+				domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+				domainAxis.setLowerMargin(0.0);
+				domainAxis.setUpperMargin(0.0);
+				domainAxis.setCategoryMargin(0.0);
+
+				NumberAxis rangeAxis = (NumberAxis) plot.getRangeAxis();
+				rangeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+				rangeAxis.setRange(0, 100);
+				return chart;
+			}
+		}.doPng(req, rsp);
+	}
+
+	public String getIconFileName() {
+		return "graph.gif";
+	}
+
+	public String getDisplayName() {
+		return Messages.SASUnitCoverageAction_DisplayName();
+	}
+
+	public String getUrlName() {
+		return "sasunitCoverage";
+	}
+}
@@ -0,0 +1,204 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Action;
+import hudson.model.BuildListener;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.EditType;
+import hudson.tasks.BuildStepDescriptor;
+import hudson.tasks.BuildStepMonitor;
+import hudson.tasks.Publisher;
+import hudson.tasks.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+* Records the macro coverage measured during a SASUnit run.
+*
+* The coverage files are parsed on the node, the master only receives and stores the
+* resulting line coverage. Besides the total coverage the diff coverage is reported, i.e.
+* the coverage of the macros whose source files changed in the current changeset.
+*
+* @author Bernhard Braun
+*/
+public class SASUnitCoverageRecorder extends Recorder {
+
+	/**
+	* Default file pattern of the coverage files written by SASUnit
+	*/
+	public static final String DEFAULT_COVERAGE_FILES = "**/*.tcov";
+
+	/**
+	* Ant style file pattern of the coverage files relative to the workspace,
+	* {@link #DEFAULT_COVERAGE_FILES} if empty
+	*/
+	private final String coverageFiles;
+
+	/**
+	* Constructor using fields
+	*
+	* @param coverageFiles
+	* Ant style file pattern of the coverage files relative to the workspace
+	*/
+	@DataBoundConstructor
+	public SASUnitCoverageRecorder(String coverageFiles) {
+		this.coverageFiles = coverageFiles;
+	}
+
+	public String getCoverageFiles() {
+		return coverageFiles;
+	}
+
+	@Override
+	public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws IOException, InterruptedException {
+		PrintStream logger = listener.getLogger();
+		logger.append(Messages.SASUnitCoverageRecorder_RecordingCoverage());
+
+		EnvVars env = build.getEnvironment(listener);
+		String includes = env.expand(coverageFiles == null || coverageFiles.length() == 0 ? DEFAULT_COVERAGE_FILES : coverageFiles);
+
+		FilePath projectWorkspace = build.getWorkspace();
+		if (projectWorkspace == null) {
+			logger.append(Messages.SASUnitCoverageRecorder_NoWorkspace());
+			return true;
+		}
+		Map<String, String> changedMacros = getChangedMacros(build.getChangeSet());
+		SASUnitCoverageResult result = projectWorkspace.act(new SASUnitCoverageParser(includes, changedMacros));
+		if (result.getFileCount() == 0) {
+			logger.append(Messages.SASUnitCoverageRecorder_NoCoverageFilesFound(includes));
+			return true;
+		}
+
+		SASUnitCoverageAction.save(build, result);
+		SASUnitCoverageAction action = new SASUnitCoverageAction(result, changedMacros.keySet());
+		build.addAction(action);
+
+		logger.append(Messages.SASUnitCoverageRecorder_Summary(result.getFileCount(), action.getMacroCount(),
+				action.getCoveredLines(), action.getTotalLines(), action.getPercentage()));
+		if (action.hasDiffCoverage()) {
+			logger.append(Messages.SASUnitCoverageRecorder_DiffSummary(action.getDiffCoveredLines(),
+					action.getDiffTotalLines(), action.getDiffPercentage()));
+			if (action.getDiffNotExecuted() > 0) {
+				logger.append(Messages.SASUnitCoverageRecorder_DiffNotExecuted(action.getDiffNotExecuted()));
+			}
+		}
+		return true;
+	}
+
+	/**
+	* Collects the macros whose source files have been changed in the build. The macro
+	* name is the name of the .sas file, as required by the SAS autocall facility.
+	* Macros whose source has been deleted are left out.
+	*
+	* @param changes The changeset of the build
+	* @return The paths of the changed macro sources, keyed by lower case macro name
+	*/
+	static Map<String, String> getChangedMacros(Iterable<? extends ChangeLogSet.Entry> changes) {
+		Map<String, String> macros = new HashMap<String, String>();
+		for (ChangeLogSet.Entry entry : changes) {
+			Collection<? extends ChangeLogSet.AffectedFile> files;
+			try {
+				files = entry.getAffectedFiles();
+			} catch (UnsupportedOperationException uoe) {
+				// SCM does not report edit types, fall back to the plain paths
+				files = null;
+			}
+			if (files == null) {
+				for (String path : entry.getAffectedPaths()) {
+					addChangedMacro(macros, path, false);
+				}
+			} else {
+				for (ChangeLogSet.AffectedFile file : files) {
+					addChangedMacro(macros, file.getPath(), file.getEditType() == EditType.DELETE);
+				}
+			}
+		}
+		return macros;
+	}
+
+	private static void addChangedMacro(Map<String, String> macros, String path, boolean deleted) {
+		String name = getMacroName(path);
+		if (name == null) {
+			return;
+		}
+		if (deleted) {
+			macros.remove(name);
+		} else {
+			macros.put(name, path.replace('\\', '/'));
+		}
+	}
+
+	/**
+	* Get the macro name of a source file.
+	*
+	* @param path The path of the source file, separated by / or \
+	* @return The lower case macro name or null if the file is no SAS program
+	*/
+	static String getMacroName(String path) {
+		String name = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1).toLowerCase(Locale.ENGLISH);
+		if (name.endsWith(".sas") && name.length() > 4) {
+			return name.substring(0, name.length() - 4);
+		}
+		return null;
+	}
+
+	@Override
+	public Action getProjectAction(AbstractProject<?, ?> project) {
+		return new SASUnitCoverageProjectAction(project);
+	}
+
+	public BuildStepMonitor getRequiredMonitorService() {
+		return BuildStepMonitor.NONE;
+	}
+
+	/**
+	* Descriptor for {@link SASUnitCoverageRecorder}.
+	*/
+	@Extension
+	public static final class DescriptorImpl extends BuildStepDescriptor<Publisher> {
+
+		/**
+		* This human readable name is used in the configuration screen.
+		*/
+		@Override
+		public String getDisplayName() {
+			return Messages.SASUnitCoverageRecorder_DisplayName();
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public boolean isApplicable(Class<? extends AbstractProject> jobType) {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+* Macro coverage of one build, as parsed from the SASUnit coverage files.
+*
+* @author Bernhard Braun
+*/
+public class SASUnitCoverageResult implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	* Coverage per macro, keyed and sorted by lower case macro name
+	*/
+	private final Map<String, SASUnitMacroCoverage> macros = new TreeMap<String, SASUnitMacroCoverage>();
+
+	/**
+	* Changed macros without any coverage record, keyed by lower case macro name.
+	* They do not count towards the total coverage.
+	*/
+	private Map<String, SASUnitMacroCoverage> notExecutedMacros;
+
+	/**
+	* Changed sources that do not define a macro of their name, e.g. test scenarios.
+	* They do not count towards the diff coverage.
+	*/
+	private Set<String> noMacros;
+
+	/**
+	* Number of coverage files that have been parsed
+	*/
+	private int fileCount;
+
+	public void add(SASUnitMacroCoverage macro) {
+		macros.put(macro.getName(), macro);
+	}
+
+	public Collection<SASUnitMacroCoverage> getMacros() {
+		return macros.values();
+	}
+
+	/**
+	* Get the coverage of a macro.
+	*
+	* @param name The macro name, case insensitive
+	* @return The coverage or null if the macro has not been executed by any test
+	*/
+	public SASUnitMacroCoverage getMacro(String name) {
+		return macros.get(name.toLowerCase(Locale.ENGLISH));
+	}
+
+	void addNotExecuted(SASUnitMacroCoverage macro) {
+		if (notExecutedMacros == null) {
+			notExecutedMacros = new TreeMap<String, SASUnitMacroCoverage>();
+		}
+		notExecutedMacros.put(macro.getName(), macro);
+	}
+
+	/**
+	* Get the coverage of a changed macro that no test executed.
+	*
+	* @param name The macro name, case insensitive
+	* @return The coverage or null if the macro has been executed or its source was not found
+	*/
+	public SASUnitMacroCoverage getNotExecutedMacro(String name) {
+		return notExecutedMacros == null ? null : notExecutedMacros.get(name.toLowerCase(Locale.ENGLISH));
+	}
+
+	void addNoMacro(String name) {
+		if (noMacros == null) {
+			noMacros = new TreeSet<String>();
+		}
+		noMacros.add(name);
+	}
+
+	/**
+	* Check whether a changed source is a macro.
+	*
+	* @param name The lower case name of the source file
+	* @return false if the source was found and does not define a macro of that name
+	*/
+	public boolean isMacro(String name) {
+		return noMacros == null || !noMacros.contains(name);
+	}
+
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	void setFileCount(int fileCount) {
+		this.fileCount = fileCount;
+	}
+
+	public int getTotalLines() {
+		int total = 0;
+		for (SASUnitMacroCoverage macro : macros.values()) {
+			total += macro.getTotalLines();
+		}
+		return total;
+	}
+
+	public int getCoveredLines() {
+		int covered = 0;
+		for (SASUnitMacroCoverage macro : macros.values()) {
+			covered += macro.getCoveredLines();
+		}
+		return covered;
+	}
+
+	static int percentage(int covered, int total) {
+		if (total == 0) {
+			return 100;
+		}
+		return (int) (100L * covered / total);
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+* Line coverage of a single SAS macro.
+*
+* Lines are stored as bit sets indexed by the line number of the macro source,
+* so a macro with some thousand lines costs only a few hundred bytes.
+*
+* @author Bernhard Braun
+*/
+public class SASUnitMacroCoverage implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	* Lower case name of the macro
+	*/
+	private final String name;
+
+	/**
+	* Lines that generate code and therefore can be executed
+	*/
+	private final BitSet coverableLines;
+
+	/**
+	* Lines that have been executed by at least one test
+	*/
+	private final BitSet coveredLines;
+
+	/**
+	* True if no test executed the macro, its coverable lines are then counted from its source file
+	*/
+	private final boolean notExecuted;
+
+	/**
+	* Constructor using fields.
+	*
+	* @param name The name of the macro
+	* @param coverableLines The lines that can be executed
+	* @param coveredLines The lines that have been executed
+	*/
+	public SASUnitMacroCoverage(String name, BitSet coverableLines, BitSet coveredLines) {
+		this(name, coverableLines, coveredLines, false);
+	}
+
+	private SASUnitMacroCoverage(String name, BitSet coverableLines, BitSet coveredLines, boolean notExecuted) {
+		this.name = name;
+		this.coverableLines = coverableLines;
+		this.coveredLines = coveredLines;
+		this.notExecuted = notExecuted;
+	}
+
+	/**
+	* Coverage of a macro that no test executed.
+	*
+	* @param name The name of the macro
+	* @param coverableLines The lines of the macro source that can be executed, empty if unknown
+	* @return The coverage without any covered line
+	*/
+	public static SASUnitMacroCoverage notExecuted(String name, BitSet coverableLines) {
+		return new SASUnitMacroCoverage(name, coverableLines, new BitSet(), true);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isExecuted() {
+		return !notExecuted;
+	}
+
+	public int getTotalLines() {
+		return coverableLines.cardinality();
+	}
+
+	public int getCoveredLines() {
+		return coveredLines.cardinality();
+	}
+
+	/**
+	* Percentage of executed lines, rounded down. A macro without any
+	* coverable lines counts as fully covered.
+	*
+	* @return The percentage between 0 and 100
+	*/
+	public int getPercentage() {
+		return SASUnitCoverageResult.percentage(getCoveredLines(), getTotalLines());
+	}
+
+	public boolean isCoverable(int line) {
+		return coverableLines.get(line);
+	}
+
+	public boolean isCovered(int line) {
+		return coveredLines.get(line);
+	}
+
+	/**
+	* Lines that can be executed but have not been, as comma separated ranges,
+	* e.g. "12-15, 30".
+	*
+	* @return The ranges or an empty string if all lines are covered
+	*/
+	public String getUncoveredLines() {
+		BitSet uncovered = (BitSet) coverableLines.clone();
+		uncovered.andNot(coveredLines);
+
+		StringBuilder ranges = new StringBuilder();
+		for (int start = uncovered.nextSetBit(0); start >= 0; start = uncovered.nextSetBit(start)) {
+			int end = uncovered.nextClearBit(start) - 1;
+			if (ranges.length() > 0) {
+				ranges.append(", ");
+			}
+			ranges.append(start);
+			if (end > start) {
+				ranges.append('-').append(end);
+			}
+			start = end + 1;
+		}
+		return ranges.toString();
+	}
+}
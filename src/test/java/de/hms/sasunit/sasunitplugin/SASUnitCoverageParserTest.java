@@ -0,0 +1,166 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+* Test parsing of the MCOVERAGE files written during a SASUnit run.
+* @author Bernhard Braun
+*/
+public class SASUnitCoverageParserTest {
+
+	@Rule
+	public TemporaryFolder workspace = new TemporaryFolder();
+
+	String		testCoverage1	= "1 1 1 MYMACRO\n"
+								+ "3 2 3 MYMACRO\n"
+								+ "2 4 6 MYMACRO\n"
+								+ "2 9 9 MYMACRO\n"
+								+ "4 10 10 MYMACRO\n";
+
+	String		testCoverage2	= "1 1 1 mymacro\n"
+								+ "2 7 7 mymacro\n"
+								+ "no coverage record\n"
+								+ "2 x 3 mymacro\n"
+								+ "1 1 1 other\n"
+								+ "2 1 2 other\n"
+								+ "4 2 2 other\n";
+
+	@Test
+	public void testParseSingleFile() throws Exception {
+		SASUnitMacroCoverage macro = parse(testCoverage1).getMacro("MyMacro");
+
+		assertEquals(8, macro.getTotalLines());
+		assertEquals(4, macro.getCoveredLines());
+		assertEquals(50, macro.getPercentage());
+		assertFalse(macro.isCoverable(2));
+		assertTrue(macro.isCovered(5));
+		assertEquals("1, 7-8, 10", macro.getUncoveredLines());
+	}
+
+	@Test
+	public void testMergeFiles() throws Exception {
+		SASUnitCoverageResult result = parse(testCoverage1, testCoverage2);
+
+		assertEquals(2, result.getMacros().size());
+		assertEquals(5, result.getMacro("mymacro").getCoveredLines());
+		assertEquals(100, result.getMacro("other").getPercentage());
+		assertEquals(10, result.getTotalLines());
+		assertEquals(7, result.getCoveredLines());
+		assertNull(result.getMacro("missing"));
+	}
+
+	@Test
+	public void testParseSource() throws Exception {
+		assertEquals(3, SASUnitCoverageParser.parseSource(new StringReader("%macro untested;\n\n  %put x;\n%mend;\n"), "untested").cardinality());
+		assertEquals(2, SASUnitCoverageParser.parseSource(new StringReader("%MACRO Untested(x);\n%MEND;\n"), "untested").cardinality());
+		assertNull(SASUnitCoverageParser.parseSource(new StringReader("%macro untested2;\n%mend;\n"), "untested"));
+		assertNull(SASUnitCoverageParser.parseSource(new StringReader("%initScenario(description=test);\n%untested;\n"), "untested"));
+	}
+
+	@Test
+	public void testChangedMacrosNotExecuted() throws Exception {
+		FileUtils.writeStringToFile(new File(workspace.getRoot(), "tst/mymacro.tcov"), testCoverage1);
+		FileUtils.writeStringToFile(new File(workspace.getRoot(), "src/untested.sas"), "%macro untested;\n\n  %put x;\n%mend;\n");
+
+		Map<String, String> changedSources = new HashMap<String, String>();
+		changedSources.put("mymacro", "src/mymacro.sas");
+		changedSources.put("untested", "src/untested.sas");
+		changedSources.put("missing", "src/missing.sas");
+		SASUnitCoverageResult result = new SASUnitCoverageParser("**/*.tcov", changedSources).invoke(workspace.getRoot(), null);
+
+		assertEquals(1, result.getFileCount());
+		assertEquals(1, result.getMacros().size());
+		assertNull(result.getNotExecutedMacro("mymacro"));
+		assertNull(result.getNotExecutedMacro("missing"));
+		assertFalse(result.getNotExecutedMacro("untested").isExecuted());
+		assertEquals(3, result.getNotExecutedMacro("untested").getTotalLines());
+
+		SASUnitCoverageAction action = new SASUnitCoverageAction(result, changedSources.keySet());
+		assertTrue(action.hasDiffCoverage());
+		assertEquals(2, action.getDiffNotExecuted());
+		assertEquals(11, action.getDiffTotalLines());
+		assertEquals(4, action.getDiffCoveredLines());
+		assertEquals(36, action.getDiffPercentage());
+		assertEquals(8, action.getTotalLines());
+
+		// no changed macro executed at all
+		action = new SASUnitCoverageAction(result, new HashSet<String>(Arrays.asList("untested", "missing")));
+		assertTrue(action.hasDiffCoverage());
+		assertEquals(2, action.getDiffNotExecuted());
+		assertEquals(0, action.getDiffPercentage());
+
+		action = new SASUnitCoverageAction(result, new HashSet<String>(Arrays.asList("missing")));
+		assertTrue(action.hasDiffCoverage());
+		assertEquals(0, action.getDiffTotalLines());
+		assertEquals(0, action.getDiffPercentage());
+	}
+
+	@Test
+	public void testChangedSourcesWithoutMacro() throws Exception {
+		FileUtils.writeStringToFile(new File(workspace.getRoot(), "tst/mymacro.tcov"), testCoverage1);
+		FileUtils.writeStringToFile(new File(workspace.getRoot(), "saspgm/test/foo_test.sas"),
+				"%initScenario(description=Test of foo);\n%foo;\n%endScenario();\n");
+		FileUtils.writeStringToFile(new File(workspace.getRoot(), "saspgm/test/run_all.sas"), "%include \"foo_test.sas\";\n");
+
+		Map<String, String> changedSources = new HashMap<String, String>();
+		changedSources.put("mymacro", "saspgm/mymacro.sas");
+		SASUnitCoverageAction expected = new SASUnitCoverageAction(
+				new SASUnitCoverageParser("**/*.tcov", changedSources).invoke(workspace.getRoot(), null), changedSources.keySet());
+
+		changedSources.put("foo_test", "saspgm/test/foo_test.sas");
+		changedSources.put("run_all", "saspgm/test/run_all.sas");
+		SASUnitCoverageResult result = new SASUnitCoverageParser("**/*.tcov", changedSources).invoke(workspace.getRoot(), null);
+		assertFalse(result.isMacro("foo_test"));
+		assertFalse(result.isMacro("run_all"));
+		assertNull(result.getNotExecutedMacro("foo_test"));
+
+		SASUnitCoverageAction action = new SASUnitCoverageAction(result, changedSources.keySet());
+		assertEquals(0, action.getDiffNotExecuted());
+		assertEquals(expected.getDiffTotalLines(), action.getDiffTotalLines());
+		assertEquals(expected.getDiffCoveredLines(), action.getDiffCoveredLines());
+		assertEquals(expected.getDiffPercentage(), action.getDiffPercentage());
+		assertEquals(50, action.getDiffPercentage());
+		assertEquals(1, action.getChangedMacros().size());
+	}
+
+	private static SASUnitCoverageResult parse(String... files) throws Exception {
+		Map<String, SASUnitCoverageParser.MacroLines> macros = new HashMap<String, SASUnitCoverageParser.MacroLines>();
+		for (String file : files) {
+			SASUnitCoverageParser.parse(new StringReader(file), macros);
+		}
+		return SASUnitCoverageParser.toResult(macros);
+	}
+}
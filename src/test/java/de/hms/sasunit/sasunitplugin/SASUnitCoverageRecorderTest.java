@@ -0,0 +1,233 @@
+/**
+ *
+ *  Copyright (c) 2014, HMS Analytical Software GmbH, Heidelberg
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.hms.sasunit.sasunitplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import hudson.Launcher;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.EditType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestBuilder;
+
+/**
+* Test recording of the SASUnit macro coverage in a build.
+* @author Bernhard Braun
+*/
+public class SASUnitCoverageRecorderTest {
+
+	@Rule
+	public JenkinsRule jenkinsRule = new JenkinsRule();
+
+	FreeStyleProject		project;
+
+	String					testCoverage1	= "1 1 1 MYMACRO\n"
+											+ "3 2 3 MYMACRO\n"
+											+ "2 4 6 MYMACRO\n"
+											+ "2 9 9 MYMACRO\n"
+											+ "4 10 10 MYMACRO\n";
+
+	String					testCoverage2	= "1 1 1 other\n"
+											+ "2 1 2 other\n"
+											+ "4 2 2 other\n";
+
+	@Before
+	public void setUp() throws Exception {
+		project = jenkinsRule.createFreeStyleProject();
+		project.getBuildersList().add(new TestBuilder() {
+			@Override
+			public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+				build.getWorkspace().child("tst/mymacro.tcov").write(testCoverage1, "UTF-8");
+				build.getWorkspace().child("tst/other.tcov").write(testCoverage2, "UTF-8");
+				return true;
+			}
+		});
+	}
+
+	@Test
+	public void testRecordCoverage() throws Exception {
+		project.getPublishersList().add(new SASUnitCoverageRecorder(""));
+		FreeStyleBuild build = jenkinsRule.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0).get());
+
+		SASUnitCoverageAction action = build.getAction(SASUnitCoverageAction.class);
+		assertNotNull(action);
+		assertEquals(2, action.getMacroCount());
+		assertEquals(10, action.getTotalLines());
+		assertEquals(6, action.getCoveredLines());
+		assertEquals(60, action.getPercentage());
+		assertFalse(action.hasDiffCoverage());
+		assertTrue(new File(build.getRootDir(), SASUnitCoverageAction.COVERAGE_FILE).isFile());
+		assertEquals("1, 7-8, 10", action.getResult().getMacro("mymacro").getUncoveredLines());
+	}
+
+	@Test
+	public void testReloadCoverage() throws Exception {
+		project.getPublishersList().add(new SASUnitCoverageRecorder("tst/*.tcov"));
+		FreeStyleBuild build = jenkinsRule.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0).get());
+		SASUnitCoverageAction action = build.getAction(SASUnitCoverageAction.class);
+
+		// a reload deserializes build.xml, the line coverage has to be read from its own file
+		jenkinsRule.jenkins.reload();
+		FreeStyleProject reloadedProject = (FreeStyleProject) jenkinsRule.jenkins.getItem(project.getName());
+		SASUnitCoverageAction reloaded = reloadedProject.getBuildByNumber(build.getNumber()).getAction(SASUnitCoverageAction.class);
+
+		assertNotSame(action, reloaded);
+		assertEquals(action.getTotalLines(), reloaded.getTotalLines());
+		assertEquals(action.getCoveredLines(), reloaded.getCoveredLines());
+		SASUnitCoverageResult result = reloaded.getResult();
+		assertNotNull(result);
+		assertEquals(2, result.getMacros().size());
+		assertEquals(4, result.getMacro("MyMacro").getCoveredLines());
+		assertEquals(2, result.getMacro("other").getCoveredLines());
+	}
+
+	@Test
+	public void testNoCoverageFiles() throws Exception {
+		project.getPublishersList().add(new SASUnitCoverageRecorder("**/*.missing"));
+		FreeStyleBuild build = jenkinsRule.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0).get());
+
+		assertNull(build.getAction(SASUnitCoverageAction.class));
+		assertFalse(new File(build.getRootDir(), SASUnitCoverageAction.COVERAGE_FILE).exists());
+	}
+
+	@Test
+	public void testViews() throws Exception {
+		project.getPublishersList().add(new SASUnitCoverageRecorder("tst/*.tcov"));
+		FreeStyleBuild build = jenkinsRule.assertBuildStatus(Result.SUCCESS, project.scheduleBuild2(0).get());
+
+		JenkinsRule.WebClient webClient = jenkinsRule.createWebClient();
+		String buildPage = webClient.getPage(build).asText();
+		assertTrue(buildPage, buildPage.contains("6 of 10 lines covered (60%)"));
+		String coveragePage = webClient.getPage(build, "sasunitCoverage").asText();
+		assertTrue(coveragePage, coveragePage.contains("mymacro"));
+		assertTrue(coveragePage, coveragePage.contains("1, 7-8, 10"));
+		webClient.getPage(project);
+		webClient.goTo(project.getUrl() + "sasunitCoverage/trend", "image/png");
+	}
+
+	@Test
+	public void testGetMacroName() {
+		assertEquals("mymacro", SASUnitCoverageRecorder.getMacroName("saspgm/MyMacro.sas"));
+		assertEquals("mymacro", SASUnitCoverageRecorder.getMacroName("saspgm\\MYMACRO.SAS"));
+		assertEquals("mymacro", SASUnitCoverageRecorder.getMacroName("mymacro.sas"));
+		assertNull(SASUnitCoverageRecorder.getMacroName("saspgm/.sas"));
+		assertNull(SASUnitCoverageRecorder.getMacroName("saspgm/mymacro.sas7bdat"));
+		assertNull(SASUnitCoverageRecorder.getMacroName("saspgm/readme.txt"));
+	}
+
+	@Test
+	public void testGetChangedMacros() {
+		List<ChangeLogSet.Entry> changes = new ArrayList<ChangeLogSet.Entry>();
+		changes.add(new TestEntry(Arrays.asList("saspgm/first.sas", "saspgm\\second.sas", "saspgm/.sas", "doc/readme.txt"), null));
+		changes.add(new TestEntry(null, Arrays.asList(
+				new TestFile("saspgm/third.sas", EditType.ADD),
+				new TestFile("saspgm/first.sas", EditType.EDIT),
+				new TestFile("saspgm/second.sas", EditType.DELETE),
+				new TestFile("saspgm/gone.sas", EditType.DELETE))));
+
+		Map<String, String> macros = SASUnitCoverageRecorder.getChangedMacros(changes);
+
+		assertEquals(2, macros.size());
+		assertEquals("saspgm/first.sas", macros.get("first"));
+		assertEquals("saspgm/third.sas", macros.get("third"));
+	}
+
+	/**
+	* Changelog entry reporting either plain paths or affected files with their edit type
+	*/
+	private static class TestEntry extends ChangeLogSet.Entry {
+		private final Collection<String> paths;
+		private final Collection<TestFile> files;
+
+		TestEntry(Collection<String> paths, Collection<TestFile> files) {
+			this.paths = paths;
+			this.files = files;
+		}
+
+		@Override
+		public String getMsg() {
+			return "";
+		}
+
+		@Override
+		public User getAuthor() {
+			return null;
+		}
+
+		@Override
+		public Collection<String> getAffectedPaths() {
+			if (paths != null) {
+				return paths;
+			}
+			List<String> affected = new ArrayList<String>();
+			for (TestFile file : files) {
+				affected.add(file.getPath());
+			}
+			return affected;
+		}
+
+		@Override
+		public Collection<? extends ChangeLogSet.AffectedFile> getAffectedFiles() {
+			if (files == null) {
+				throw new UnsupportedOperationException();
+			}
+			return files;
+		}
+	}
+
+	private static class TestFile implements ChangeLogSet.AffectedFile {
+		private final String path;
+		private final EditType editType;
+
+		TestFile(String path, EditType editType) {
+			this.path = path;
+			this.editType = editType;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public EditType getEditType() {
+			return editType;
+		}
+	}
+}